@@ -0,0 +1,246 @@
+package com.momo.ecommerce.benchmark;
+
+import com.momo.ecommerce.dto.response.ProductResponseDTO;
+import com.momo.ecommerce.model.CartItem;
+import com.momo.ecommerce.model.Order;
+import com.momo.ecommerce.model.OrderItem;
+import com.momo.ecommerce.model.Product;
+import com.momo.ecommerce.model.ShoppingCart;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * ========================================
+ * TEMPLATE: BENCHMARK (JMH)
+ * ========================================
+ *
+ * JMH (Java Microbenchmark Harness) mede o custo de trechos pequenos
+ * de código de forma confiável: faz warmup do JIT, roda em JVMs
+ * separadas (fork) e evita que o compilador "apague" o código medido.
+ *
+ * ❌ NÃO meça performance com System.currentTimeMillis() em um main():
+ *    o JIT ainda não otimizou, o GC interfere e o resultado engana.
+ *
+ * 📋 O QUE ESTE BENCHMARK COBRE (hot paths da API):
+ * ---------------------------------------------------
+ * - Conversão Entidade → DTO (ProductResponseDTO.fromEntity)
+ * - Serialização JSON de Page<ProductResponseDTO> (resposta do GET /products)
+ * - Montagem de pedidos grandes (Order.addItem com total incremental)
+ * - Recálculo completo do total (Order.calculateTotal), para comparação
+ * - Operações do carrinho (ShoppingCart.addItem / getTotal)
+ * - Validação de preço mínimo com BigDecimal (ProductService.create)
+ *
+ * Vive no módulo separado "benchmarks" (ver docs/benchmarks.md).
+ * Rodar com alocação por operação:
+ *   java -jar benchmarks/target/benchmarks.jar -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)  // Tempo médio por operação
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)  // Dados criados uma vez e compartilhados
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})  // 2 JVMs novas, heap fixo
+@Warmup(iterations = 5, time = 1)  // Aquece o JIT antes de medir
+@Measurement(iterations = 5, time = 1)
+public class HotPathBenchmark {
+
+    // ========================================
+    // PARÂMETROS
+    // ========================================
+
+    /**
+     * Quantidade de itens (produtos na página, linhas no pedido/carrinho).
+     * JMH roda cada benchmark uma vez para cada valor.
+     */
+    @Param({"10", "100", "1000", "5000"})  // 5000: pedido B2B grande
+    private int size;
+
+    // ========================================
+    // DADOS DE ENTRADA
+    // ========================================
+
+    private static final BigDecimal MINIMUM_PRICE = BigDecimal.valueOf(1);
+
+    private List<Product> products;
+    private Page<ProductResponseDTO> page;
+    private Order order;
+    private List<OrderItem> orderItems;       // Itens do pedido "order"
+    private List<OrderItem> buildOrderItems;  // Itens só do buildOrder
+    private ShoppingCart cart;
+    private ObjectMapper objectMapper;
+    private BigDecimal price;
+
+    /**
+     * Executado UMA vez antes das medições (Level.Trial).
+     * Nada aqui entra no tempo medido.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        price = new BigDecimal("2499.90");
+
+        products = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            Product product = Product.builder()
+                    .name("Produto " + i)
+                    .description("Descrição do produto " + i)
+                    .price(BigDecimal.valueOf(10 + i, 2))
+                    .stock(100)
+                    .build();
+            product.setId(i);
+            product.setCreatedAt(LocalDateTime.now());
+            product.setUpdatedAt(LocalDateTime.now());
+            products.add(product);
+        }
+
+        List<ProductResponseDTO> dtos = products.stream()
+                .map(ProductResponseDTO::fromEntity)
+                .collect(Collectors.toList());
+        page = new PageImpl<>(dtos, PageRequest.of(0, size), 1_000_000);
+
+        order = Order.builder().build();
+        orderItems = new ArrayList<>(size);
+        buildOrderItems = new ArrayList<>(size);
+        cart = ShoppingCart.builder().build();
+        for (Product product : products) {
+            OrderItem item = OrderItem.builder()
+                    .product(product)
+                    .quantity(2)
+                    .unitPrice(product.getPrice())
+                    .build();
+            orderItems.add(item);
+            order.addItem(item);
+            buildOrderItems.add(OrderItem.builder()
+                    .product(product)
+                    .quantity(2)
+                    .unitPrice(product.getPrice())
+                    .build());
+            cart.addItem(CartItem.builder()
+                    .product(product)
+                    .quantity(1)
+                    .build());
+        }
+    }
+
+    // ========================================
+    // BENCHMARKS
+    // ========================================
+
+    /**
+     * Conversão de uma página de entidades para DTOs.
+     *
+     * Retornar o resultado é OBRIGATÓRIO: senão o JIT percebe que
+     * ninguém usa e elimina o código (dead code elimination).
+     */
+    @Benchmark
+    public List<ProductResponseDTO> mapProductsToDto() {
+        return products.stream()
+                .map(ProductResponseDTO::fromEntity)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Serialização JSON da resposta paginada.
+     */
+    @Benchmark
+    public String serializePage() {
+        return objectMapper.writeValueAsString(page);
+    }
+
+    /**
+     * Monta um pedido com "size" linhas, como no checkout.
+     *
+     * Com o total incremental, cada addItem soma só o subtotal do item:
+     * o tempo cresce LINEARMENTE com size. (Recalculando tudo a cada
+     * addItem, crescia ao quadrado: 5000 linhas = 12,5 milhões de somas.)
+     *
+     * Usa uma lista de itens PRÓPRIA: addItem faz item.setOrder(newOrder),
+     * e com os itens de "order" mudaria o estado que orderTotal e
+     * orderTotalFullRecalculation medem.
+     */
+    @Benchmark
+    public BigDecimal buildOrder() {
+        Order newOrder = Order.builder().build();
+        for (OrderItem item : buildOrderItems) {
+            newOrder.addItem(item);
+        }
+        return newOrder.getTotalAmount();
+    }
+
+    /**
+     * Lê o total do pedido (O(1): já está calculado).
+     */
+    @Benchmark
+    public BigDecimal orderTotal() {
+        return order.getTotalAmount();
+    }
+
+    /**
+     * Recálculo completo (O(n), em centavos). Só para comparação:
+     * o fluxo normal não chama mais calculateTotal.
+     */
+    @Benchmark
+    public BigDecimal orderTotalFullRecalculation() {
+        order.calculateTotal();
+        return order.getTotalAmount();
+    }
+
+    /**
+     * Adiciona um produto que JÁ está no carrinho (caminho mais comum:
+     * o cliente clica "+1"). Mede a busca do item existente na lista.
+     */
+    @Benchmark
+    public ShoppingCart cartAddExistingItem() {
+        cart.addItem(CartItem.builder()
+                .product(products.get(size - 1))
+                .quantity(1)
+                .build());
+        return cart;
+    }
+
+    /**
+     * Total do carrinho (O(1): mantido a cada addItem/removeItem).
+     */
+    @Benchmark
+    public BigDecimal cartTotal() {
+        return cart.getTotal();
+    }
+
+    /**
+     * Validação de preço mínimo como em ProductService.create.
+     */
+    @Benchmark
+    public boolean priceValidation() {
+        return price.compareTo(MINIMUM_PRICE) < 0;
+    }
+}
+
+// ========================================
+// 📚 BOAS PRÁTICAS - BENCHMARKS
+// ========================================
+
+/*
+ * 1. CONFIABILIDADE:
+ *    ✅ Sempre use @Fork >= 1 (JVM limpa para cada benchmark)
+ *    ✅ Faça warmup (o JIT precisa de milhares de chamadas para otimizar)
+ *    ✅ Retorne o resultado ou use Blackhole.consume()
+ *    ❌ Não prepare dados dentro do método @Benchmark (use @Setup)
+ *
+ * 2. ALOCAÇÃO:
+ *    ✅ Rode com -prof gc e olhe gc.alloc.rate.norm (bytes por operação)
+ *    ✅ Menos bytes por operação = menos GC sob carga
+ *
+ * 3. COMPARAÇÃO:
+ *    ✅ Salve o resultado (-rf json) antes de mudar o código
+ *    ✅ Rode o MESMO benchmark depois e compare com o baseline
+ *    ✅ Diferenças dentro da margem de erro (Error) não são significativas
+ */
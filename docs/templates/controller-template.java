@@ -12,12 +12,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * REST Controller template.
@@ -64,7 +69,7 @@ public class EntityController {
     public ResponseEntity<Page<EntityDTO>> listAll(
             @PageableDefault(size = 10, sort = "name", direction = Sort.Direction.ASC) Pageable pageable) {
         
-        log.info("GET /api/entities - page: {}, size: {}", pageable.getPageNumber(), pageable.getPageSize());
+        log.debug("GET /api/entities - page: {}, size: {}", pageable.getPageNumber(), pageable.getPageSize());
         
         Page<Entity> entities = entityService.findAll(pageable);
         Page<EntityDTO> dtos = entities.map(this::convertToDTO);
@@ -72,6 +77,33 @@ public class EntityController {
         return ResponseEntity.ok(dtos);
     }
 
+    /**
+     * Lista entidades com paginação por CURSOR (scroll infinito).
+     * 
+     * URL: GET /api/entities/scroll?size=20&cursor=MTI6TGFwdG9w
+     * 
+     * Query Params:
+     * - cursor: nextCursor da resposta anterior (omitir na primeira página)
+     * - size: tamanho da página (default: 20, máximo: 100)
+     * 
+     * Diferença para listAll:
+     * - Sem totalElements/totalPages (não roda COUNT(*))
+     * - Mesma velocidade na página 1 ou na página 10.000
+     * 
+     * Resposta: 200 OK + CursorPage<EntityDTO>
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<EntityService.CursorPage<EntityDTO>> scroll(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        log.debug("GET /api/entities/scroll - size: {}", size);
+        
+        EntityService.CursorPage<Entity> entities = entityService.findAllByCursor(cursor, size);
+        
+        return ResponseEntity.ok(entities.map(this::convertToDTO));
+    }
+
     /**
      * Busca entidade por ID.
      * 
@@ -86,7 +118,7 @@ public class EntityController {
      */
     @GetMapping("/{id}")
     public ResponseEntity<EntityDTO> getById(@PathVariable Long id) {
-        log.info("GET /api/entities/{}", id);
+        log.debug("GET /api/entities/{}", id);
         
         Entity entity = entityService.findById(id);
         EntityDTO dto = convertToDTO(entity);
@@ -95,29 +127,66 @@ public class EntityController {
     }
 
     /**
-     * Busca entidades por filtro (query parameter).
+     * Busca entidades por texto, ordenadas por relevância.
      * 
-     * URL: GET /api/entities/search?name=laptop&active=true
+     * URL: GET /api/entities/search?name=laptop&active=true&page=0&size=20
      * 
      * Query Params:
-     * - name: filtro por nome (opcional)
+     * - name: texto buscado (prefixos e erros de digitação são aceitos)
      * - active: filtro por status (opcional)
+     * - page, size: paginação (sort é ignorado: ordem = relevância)
      * 
-     * Resposta: 200 OK + List<EntityDTO>
+     * A busca usa índice full-text (não LIKE '%x%'), então pode ser
+     * chamada a cada tecla digitada (autocomplete).
+     * 
+     * Resposta: 200 OK + Page<EntityDTO>
      */
     @GetMapping("/search")
-    public ResponseEntity<List<EntityDTO>> search(
+    public ResponseEntity<Page<EntityDTO>> search(
             @RequestParam(required = false) String name,
-            @RequestParam(required = false) Boolean active) {
+            @RequestParam(required = false) Boolean active,
+            @PageableDefault(size = 20) Pageable pageable) {
         
-        log.info("GET /api/entities/search - name: {}, active: {}", name, active);
+        log.debug("GET /api/entities/search - name: {}, active: {}", name, active);
         
-        List<Entity> entities = entityService.search(name, active);
-        List<EntityDTO> dtos = entities.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        Page<Entity> entities = entityService.search(name, active, pageable);
         
-        return ResponseEntity.ok(dtos);
+        return ResponseEntity.ok(entities.map(this::convertToDTO));
+    }
+
+    /**
+     * Exporta TODAS as entidades em streaming (NDJSON ou CSV).
+     * 
+     * URL: GET /api/entities/export?format=NDJSON
+     * 
+     * Query Params:
+     * - format: NDJSON (default) ou CSV
+     * 
+     * StreamingResponseBody:
+     * - A resposta é escrita aos poucos, enquanto o banco devolve as linhas
+     * - Nada de List gigante em memória
+     * - Roda em uma thread async do Spring MVC; para catálogos muito
+     *   grandes aumente spring.mvc.async.request-timeout
+     * 
+     * Resposta: 200 OK + arquivo (Content-Disposition: attachment)
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(defaultValue = "NDJSON") EntityService.ExportFormat format) {
+        
+        log.debug("GET /api/entities/export - format: {}", format);
+        
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            entityService.exportCatalog(writer, format);
+        };
+        
+        String filename = "entities." + format.name().toLowerCase();
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
     }
 
     // ═══════════════════════════════════════════════════════════
@@ -147,7 +216,7 @@ public class EntityController {
      */
     @PostMapping
     public ResponseEntity<EntityDTO> create(@Valid @RequestBody CreateEntityRequest request) {
-        log.info("POST /api/entities - {}", request);
+        log.debug("POST /api/entities");  // Nunca logue o DTO inteiro: toString() de tudo + dados pessoais
         
         // Converter DTO Request -> Entity
         Entity entity = convertToEntity(request);
@@ -184,7 +253,7 @@ public class EntityController {
             @PathVariable Long id,
             @Valid @RequestBody UpdateEntityRequest request) {
         
-        log.info("PUT /api/entities/{} - {}", id, request);
+        log.debug("PUT /api/entities/{}", id);
         
         Entity entity = convertToEntity(request);
         Entity updated = entityService.update(id, entity);
@@ -211,7 +280,7 @@ public class EntityController {
             @PathVariable Long id,
             @RequestBody UpdateEntityRequest request) {
         
-        log.info("PATCH /api/entities/{} - {}", id, request);
+        log.debug("PATCH /api/entities/{}", id);
         
         Entity updated = entityService.partialUpdate(id, request);
         EntityDTO dto = convertToDTO(updated);
@@ -234,7 +303,7 @@ public class EntityController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable Long id) {
-        log.info("DELETE /api/entities/{}", id);
+        log.debug("DELETE /api/entities/{}", id);
         
         entityService.delete(id);
         
@@ -251,7 +320,7 @@ public class EntityController {
      */
     @DeleteMapping("/{id}/deactivate")
     public ResponseEntity<EntityDTO> deactivate(@PathVariable Long id) {
-        log.info("DELETE /api/entities/{}/deactivate", id);
+        log.debug("DELETE /api/entities/{}/deactivate", id);
         
         Entity deactivated = entityService.deactivate(id);
         EntityDTO dto = convertToDTO(deactivated);
@@ -270,6 +339,10 @@ public class EntityController {
      * - Nunca retornar entidades JPA diretamente!
      * - DTOs evitam lazy loading exceptions
      * - DTOs controlam exatamente o que é exposto na API
+     * 
+     * ⚠️ N+1: getCategory().getName() dispara uma query POR ENTIDADE
+     * se a categoria não veio junto. Toda query usada em listagem
+     * precisa buscar a categoria (@EntityGraph / JOIN FETCH).
      */
     private EntityDTO convertToDTO(Entity entity) {
         return EntityDTO.builder()
@@ -340,6 +413,9 @@ public class EntityController {
  *    - Log DEBUG: detalhes para debug
  *    - Log ERROR: erros e exceções
  *    - Não logar dados sensíveis (senhas, tokens)
+ *    - Entrada de cada endpoint em DEBUG: o log de requisições
+ *      amostrado (RequestSamplingLogFilter) e as métricas já cobrem isso
+ *    - Use {} e nunca concatene: com o nível desligado, nada é formatado
  * 
  * 5. RESPONSABILIDADE DO CONTROLLER:
  *    - Receber request
@@ -353,6 +429,8 @@ public class EntityController {
  *    - Sempre paginar listagens grandes
  *    - Use Pageable do Spring Data
  *    - Cliente controla page, size e sort
+ *    - Scroll infinito? Use cursor + Slice (sem COUNT, sem OFFSET)
+ *    - Exportação completa? Use StreamingResponseBody (nunca List)
  * 
  * 7. DTOs vs ENTITIES:
  *    - Request DTO: dados que cliente envia
@@ -38,10 +38,19 @@ public class EntityTemplate {
     
     /**
      * Identificador único da entidade.
-     * Gerado automaticamente pelo banco de dados (auto-increment).
+     * Gerado por uma SEQUENCE do banco (nome_da_tabela_seq).
+     * 
+     * Por que SEQUENCE e não IDENTITY (auto-increment)?
+     * - Com IDENTITY o Hibernate só descobre o ID depois de cada INSERT,
+     *   então não consegue agrupar inserts em lote (JDBC batch)
+     * - Com SEQUENCE + allocationSize = 50 o Hibernate reserva 50 IDs
+     *   por chamada (otimizador "pooled") e envia os INSERTs em lote
+     * 
+     * ⚠️ O INCREMENT BY da sequence no banco precisa ser igual ao allocationSize.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "nome_da_tabela_seq")
+    @SequenceGenerator(name = "nome_da_tabela_seq", sequenceName = "nome_da_tabela_seq", allocationSize = 50)
     private Long id;
 
     // ═══════════════════════════════════════════════════════════
@@ -127,6 +136,27 @@ public class EntityTemplate {
     @JsonIgnore
     private Customer customer;
 
+    // ═══════════════════════════════════════════════════════════
+    // CONTROLE DE CONCORRÊNCIA (optimistic locking)
+    // ═══════════════════════════════════════════════════════════
+
+    /**
+     * Versão da linha, controlada pelo Hibernate.
+     * 
+     * Todo UPDATE vira: UPDATE ... SET version = version + 1
+     *                   WHERE id = ? AND version = ?
+     * Se outra transação gravou antes, 0 linhas são afetadas e o
+     * Hibernate lança OptimisticLockingFailureException, em vez de
+     * sobrescrever a alteração dela em silêncio (lost update).
+     * 
+     * - Nunca altere manualmente (sem setter)
+     * - Não trava nada no banco: o custo só aparece quando há conflito
+     * - Trate o conflito com OptimisticRetryExecutor (ver docs/best-practices.md)
+     */
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
     // ═══════════════════════════════════════════════════════════
     // CAMPOS DE AUDITORIA (timestamps)
     // ═══════════════════════════════════════════════════════════
@@ -241,7 +271,12 @@ public class EntityTemplate {
  *    - Mas evite @Data em entidades JPA (pode causar problemas com lazy loading)
  *    - Prefira @Getter + @Setter explícitos
  * 
- * 7. BUILDER:
+ * 7. IDs:
+ *    - SEQUENCE (allocationSize = 50) permite batch insert
+ *    - IDENTITY desliga o batch insert do Hibernate
+ *    - Combine com hibernate.jdbc.batch_size e order_inserts
+ * 
+ * 8. BUILDER:
  *    - Muito útil para criar objetos em testes
  *    - Exemplo: Product.builder().name("Laptop").price(2000).build()
  * 
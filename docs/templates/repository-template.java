@@ -0,0 +1,477 @@
+package com.momo.ecommerce.repository;
+
+import com.momo.ecommerce.dto.response.ProductResponseDTO;
+import com.momo.ecommerce.model.Product;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+/**
+ * ========================================
+ * TEMPLATE: REPOSITORY LAYER
+ * ========================================
+ *
+ * O REPOSITORY é a camada de ACESSO A DADOS.
+ *
+ * Estende JpaRepository que já fornece métodos CRUD prontos:
+ * - save(product) / saveAll(products)
+ * - findById(id) / findAllById(ids)
+ * - findAll() / findAll(pageable)
+ * - deleteById(id) / delete(product)
+ * - count() / existsById(id)
+ *
+ * Você só adiciona QUERY METHODS customizados:
+ * - Por convenção de nome (findByNameContainingIgnoreCase)
+ * - Por JPQL explícito (@Query)
+ *
+ * ❌ O REPOSITORY NÃO DEVE:
+ * ----------------------
+ * ❌ Ter regras de negócio (isso é do Service)
+ * ❌ Conhecer DTOs de request
+ *
+ * Exceção: PROJEÇÕES de leitura podem devolver o DTO de resposta
+ * direto da query (ver seção PROJEÇÕES).
+ */
+@Repository
+public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    // ========================================
+    // FETCH PLAN (evitar N+1)
+    // ========================================
+
+    /**
+     * findAll paginado JÁ trazendo a categoria de cada produto.
+     *
+     * Sem isso, a listagem faz 1 query para os produtos + 1 query
+     * POR PRODUTO quando o DTO acessa getCategory().getName() (N+1).
+     *
+     * @EntityGraph gera um LEFT JOIN com categories na mesma query.
+     * Seguro com paginação: category é ManyToOne (não multiplica linhas).
+     */
+    @Override
+    @EntityGraph(attributePaths = "category")
+    Page<Product> findAll(Pageable pageable);
+
+    // ========================================
+    // QUERY METHODS (gerados pelo nome)
+    // ========================================
+
+    /**
+     * Verifica se já existe produto com este nome.
+     *
+     * SQL gerado: SELECT COUNT(*) > 0 FROM products WHERE name = ?
+     */
+    boolean existsByName(String name);
+
+    /**
+     * Busca produtos pelo nome (correspondência parcial, case-insensitive).
+     *
+     * SQL gerado: SELECT * FROM products WHERE LOWER(name) LIKE LOWER('%name%')
+     *
+     * ⚠️ LIKE '%x%' não usa índice B-tree: varre a tabela inteira.
+     * Para a busca da loja use searchByText().
+     */
+    List<Product> findByNameContainingIgnoreCase(String name);
+
+    /**
+     * Busca produtos com preço entre min e max (inclusive).
+     */
+    List<Product> findByPriceBetween(BigDecimal minPrice, BigDecimal maxPrice);
+
+    // ========================================
+    // PROJEÇÕES (leitura direto para DTO)
+    // ========================================
+
+    /**
+     * Listagem paginada direto em ProductResponseDTO.
+     *
+     * "SELECT new ..." (constructor expression) monta o record na query:
+     * - Seleciona SÓ as colunas do DTO
+     * - Nenhuma entidade entra no contexto de persistência
+     * - Sem dirty checking, sem snapshot para comparar no flush
+     * - Menos objetos alocados por página
+     *
+     * Os argumentos seguem a ORDEM do construtor do record.
+     * O Pageable pode ordenar por qualquer campo usando o alias "p".
+     */
+    @Query(value = """
+            SELECT new com.momo.ecommerce.dto.response.ProductResponseDTO(
+                p.id, p.name, p.description, p.price, p.stock, p.createdAt, p.updatedAt)
+            FROM Product p
+            """,
+            countQuery = "SELECT COUNT(p) FROM Product p")
+    Page<ProductResponseDTO> findAllAsDto(Pageable pageable);
+
+    /**
+     * Todos os produtos como DTO (sem paginação).
+     *
+     * ⚠️ Continua sem limite: prefira a versão paginada ou streamAllBy().
+     */
+    @Query("""
+            SELECT new com.momo.ecommerce.dto.response.ProductResponseDTO(
+                p.id, p.name, p.description, p.price, p.stock, p.createdAt, p.updatedAt)
+            FROM Product p
+            """)
+    List<ProductResponseDTO> findAllAsDto();
+
+    /**
+     * Faixa de preço direto em DTO.
+     *
+     * @deprecated sem limite: uma faixa larga devolve o catálogo inteiro.
+     *             Use a versão paginada abaixo.
+     */
+    @Deprecated
+    @Query("""
+            SELECT new com.momo.ecommerce.dto.response.ProductResponseDTO(
+                p.id, p.name, p.description, p.price, p.stock, p.createdAt, p.updatedAt)
+            FROM Product p
+            WHERE p.price BETWEEN :minPrice AND :maxPrice
+            ORDER BY p.price ASC, p.id ASC
+            """)
+    List<ProductResponseDTO> findAsDtoByPriceBetween(@Param("minPrice") BigDecimal minPrice,
+                                                     @Param("maxPrice") BigDecimal maxPrice);
+
+    /**
+     * Faixa de preço PAGINADA (só produtos ativos), ordenada por preço.
+     *
+     * Usa o índice idx_products_active_price (active, price), criado na
+     * migration V3: o banco vai direto ao início da faixa, já lê na
+     * ordem do ORDER BY (sem sort) e para ao completar a página.
+     *
+     * Passe um Pageable SEM sort: a ordem já está fixa na query.
+     */
+    @Query(value = """
+            SELECT new com.momo.ecommerce.dto.response.ProductResponseDTO(
+                p.id, p.name, p.description, p.price, p.stock, p.createdAt, p.updatedAt)
+            FROM Product p
+            WHERE p.active = true AND p.price BETWEEN :minPrice AND :maxPrice
+            ORDER BY p.price ASC, p.id ASC
+            """,
+            countQuery = """
+            SELECT COUNT(p) FROM Product p
+            WHERE p.active = true AND p.price BETWEEN :minPrice AND :maxPrice
+            """)
+    Page<ProductResponseDTO> findAsDtoByPriceBetween(@Param("minPrice") BigDecimal minPrice,
+                                                     @Param("maxPrice") BigDecimal maxPrice,
+                                                     Pageable pageable);
+
+    /**
+     * Faixa de preço dentro de uma categoria (índice idx_products_category_price).
+     */
+    @Query(value = """
+            SELECT new com.momo.ecommerce.dto.response.ProductResponseDTO(
+                p.id, p.name, p.description, p.price, p.stock, p.createdAt, p.updatedAt)
+            FROM Product p
+            WHERE p.category.id = :categoryId AND p.active = true
+              AND p.price BETWEEN :minPrice AND :maxPrice
+            ORDER BY p.price ASC, p.id ASC
+            """,
+            countQuery = """
+            SELECT COUNT(p) FROM Product p
+            WHERE p.category.id = :categoryId AND p.active = true
+              AND p.price BETWEEN :minPrice AND :maxPrice
+            """)
+    Page<ProductResponseDTO> findAsDtoByCategoryAndPriceBetween(@Param("categoryId") Long categoryId,
+                                                                @Param("minPrice") BigDecimal minPrice,
+                                                                @Param("maxPrice") BigDecimal maxPrice,
+                                                                Pageable pageable);
+
+    // ========================================
+    // HISTOGRAMA DE PREÇOS (facetas)
+    // ========================================
+
+    /**
+     * Linha da view materializada product_price_histogram.
+     * (Projeção por interface: o Spring preenche pelos nomes das colunas.)
+     */
+    interface PriceBucketRow {
+        Integer getBucket();
+        Long getProductCount();
+    }
+
+    /**
+     * Quantidade de produtos por faixa de preço, lida da VIEW MATERIALIZADA
+     * (migration V4): algumas dezenas de linhas pré-calculadas, sem tocar
+     * na tabela products.
+     *
+     * categoryId null = todas as categorias.
+     * CAST: o PostgreSQL precisa saber o tipo do parâmetro quando ele é null.
+     */
+    @Query(value = """
+            SELECT bucket AS bucket, CAST(SUM(product_count) AS BIGINT) AS productCount
+            FROM product_price_histogram
+            WHERE CAST(:categoryId AS BIGINT) IS NULL OR category_id = :categoryId
+            GROUP BY bucket
+            ORDER BY bucket
+            """, nativeQuery = true)
+    List<PriceBucketRow> findPriceHistogram(@Param("categoryId") Long categoryId);
+
+    /**
+     * Recalcula a view materializada.
+     *
+     * CONCURRENTLY: as leituras continuam funcionando durante o refresh
+     * (exige o índice único criado na migration).
+     */
+    @Modifying
+    @Query(value = "REFRESH MATERIALIZED VIEW CONCURRENTLY product_price_histogram", nativeQuery = true)
+    void refreshPriceHistogram();
+
+    // ========================================
+    // BUSCA TEXTUAL (full-text search)
+    // ========================================
+
+    /**
+     * Busca por relevância usando os índices GIN do PostgreSQL.
+     *
+     * Duas formas de encontrar o produto (OR):
+     * - search_vector @@ to_tsquery: palavras do nome/descrição, com
+     *   prefixo ("note:*" acha "notebook") e radical ('portuguese' reduz
+     *   plural/flexão). NÃO remove acento: "cafe" não acha "café"
+     *   (para isso, configuração com unaccent; ver best-practices.md)
+     * - name % :term (pg_trgm): nomes PARECIDOS, tolera erro de digitação
+     *
+     * Só produtos da vitrine: active = true e deleted_at nulo
+     * (parênteses: o AND vale para os dois lados do OR).
+     *
+     * Ordenação: ts_rank (nome pesa mais que descrição) e depois similaridade.
+     *
+     * A coluna search_vector e os índices são criados por SQL
+     * (ver db/search.sql no guia de boas práticas), não pelo Hibernate.
+     * Ela é GENERATED: o banco mantém sincronizada a cada INSERT/UPDATE.
+     *
+     * Query nativa não aceita @EntityGraph: as categorias da página são
+     * carregadas em UMA query extra graças a hibernate.default_batch_fetch_size.
+     *
+     * @param tsQuery termos já no formato do to_tsquery ("note:* & gamer:*")
+     * @param term    texto original digitado (para a similaridade)
+     */
+    @Query(value = """
+            SELECT p.* FROM products p
+            WHERE (p.search_vector @@ to_tsquery('portuguese', :tsQuery)
+                   OR p.name % :term)
+              AND p.active = true
+              AND p.deleted_at IS NULL
+            ORDER BY ts_rank(p.search_vector, to_tsquery('portuguese', :tsQuery)) DESC,
+                     similarity(p.name, :term) DESC,
+                     p.id
+            """,
+            countQuery = """
+            SELECT COUNT(*) FROM products p
+            WHERE (p.search_vector @@ to_tsquery('portuguese', :tsQuery)
+                   OR p.name % :term)
+              AND p.active = true
+              AND p.deleted_at IS NULL
+            """,
+            nativeQuery = true)
+    Page<Product> searchByText(@Param("tsQuery") String tsQuery, @Param("term") String term, Pageable pageable);
+
+    // ========================================
+    // KEYSET PAGINATION (paginação por cursor)
+    // ========================================
+
+    /**
+     * Primeira página ordenada por (name, id).
+     *
+     * Retornar Slice ao invés de Page = SEM query de COUNT(*).
+     * O Spring busca size + 1 linhas só para saber se existe próxima página.
+     */
+    @EntityGraph(attributePaths = "category")
+    @Query("SELECT p FROM Product p ORDER BY p.name ASC, p.id ASC")
+    Slice<Product> findFirstSlice(Pageable pageable);
+
+    /**
+     * Próxima página a partir do último item já visto (seek method).
+     *
+     * Ao invés de "pule N linhas" (OFFSET, cada vez mais lento),
+     * a query diz "comece depois de (name, id)". Com um índice em
+     * (name, id) o banco vai direto ao ponto: custo constante em
+     * qualquer profundidade.
+     *
+     * O id entra como desempate: dois produtos podem ter o mesmo nome.
+     *
+     * Compare a TUPLA (row value), não "name > ? OR (name = ? AND id > ?)":
+     * com o OR o PostgreSQL não monta um único range no índice e acaba
+     * lendo (e filtrando) todas as páginas anteriores.
+     *
+     * Índice: idx_products_name_id, migration V10__product_name_id_index.sql
+     * (ver docs/best-practices.md, seção Flyway).
+     *
+     * ⚠️ Passe sempre PageRequest.ofSize(n) (página 0): o "pulo" já está no WHERE.
+     */
+    @EntityGraph(attributePaths = "category")
+    @Query("""
+            SELECT p FROM Product p
+            WHERE (p.name, p.id) > (:name, :id)
+            ORDER BY p.name ASC, p.id ASC
+            """)
+    Slice<Product> findSliceAfter(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    // ========================================
+    // ESTOQUE (updates atômicos)
+    // ========================================
+
+    /**
+     * Baixa estoque de forma ATÔMICA: só decrementa se houver saldo.
+     *
+     * Por que não findById + setStock + save?
+     * - Duas transações leem stock = 1 ao mesmo tempo
+     * - As duas gravam stock = 0 → vendemos 2 unidades de 1 (lost update)
+     *
+     * Aqui a verificação e a escrita são UM único UPDATE no banco:
+     * UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?
+     *
+     * @return 1 se baixou, 0 se não há saldo suficiente (ou produto não existe)
+     *
+     * @Modifying: indica que a query altera dados (executeUpdate)
+     * flushAutomatically: grava as alterações pendentes ANTES do UPDATE.
+     * NÃO use clearAutomatically aqui: chamado no meio de um checkout, ele
+     * deixaria detached o carrinho e o pedido da transação (e descartaria
+     * o lock otimista do carrinho). Quem precisar do stock novo relê com
+     * entityManager.refresh(product).
+     *
+     * ⚠️ UPDATE em JPQL não dispara @PreUpdate: updatedAt é setado na query.
+     * ⚠️ Nem incrementa @Version: sem o "version + 1", um PATCH de estoque
+     *    lido antes desta baixa gravaria por cima dela sem conflito.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Product p
+            SET p.stock = p.stock - :quantity, p.updatedAt = LOCAL DATETIME, p.version = p.version + 1
+            WHERE p.id = :id AND p.stock >= :quantity
+            """)
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Devolve estoque (cancelamento, reserva expirada, reposição).
+     *
+     * @return 1 se atualizou, 0 se o produto não existe
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Product p
+            SET p.stock = p.stock + :quantity, p.updatedAt = LOCAL DATETIME, p.version = p.version + 1
+            WHERE p.id = :id
+            """)
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // ========================================
+    // OPERAÇÕES EM LOTE (set-based)
+    // ========================================
+
+    /**
+     * Linha devolvida pelo RETURNING das operações em lote.
+     *
+     * categoryId: categoria do produto afetado, para recalcular
+     * só os contadores dessas categorias (ver CategoryRepository).
+     */
+    interface BulkRow {
+        Long getId();
+        Long getCategoryId();
+    }
+
+    /**
+     * Deleta vários produtos em UM comando e devolve as linhas deletadas.
+     *
+     * deleteAll(entities) carrega cada entidade e envia um DELETE por linha.
+     * Aqui o banco resolve tudo de uma vez, sem materializar entidades.
+     *
+     * RETURNING (PostgreSQL) devolve só os IDs que existiam:
+     * quem pediu e não voltou = não encontrado.
+     *
+     * nativeQuery: RETURNING não existe em JPQL.
+     * Não use @Modifying aqui: queremos as linhas, não um int.
+     */
+    @Query(value = """
+            DELETE FROM products
+            WHERE id IN (:ids)
+            RETURNING id AS id, category_id AS categoryId
+            """, nativeQuery = true)
+    List<BulkRow> deleteAllByIdReturning(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Soft delete em lote: marca deleted_at sem apagar a linha.
+     *
+     * COALESCE mantém a data original de quem já estava deletado,
+     * então repetir a operação é seguro (idempotente).
+     *
+     * "version + 1": sem ele, um update() pela entidade que leu o produto
+     * antes grava todas as colunas (inclusive deleted_at = null) e
+     * "ressuscita" o produto sem conflito.
+     */
+    @Query(value = """
+            UPDATE products
+            SET deleted_at = COALESCE(deleted_at, now()), updated_at = now(), version = version + 1
+            WHERE id IN (:ids)
+            RETURNING id AS id, category_id AS categoryId
+            """, nativeQuery = true)
+    List<BulkRow> softDeleteAllByIdReturning(@Param("ids") Collection<Long> ids);
+
+    // ========================================
+    // STREAMING (grandes volumes)
+    // ========================================
+
+    /**
+     * Percorre TODOS os produtos como Stream, sem carregar tudo em memória.
+     *
+     * Diferente de findAll() (que monta uma List com tudo), aqui o Hibernate
+     * usa um cursor JDBC forward-only: as linhas chegam do banco em lotes
+     * de HINT_FETCH_SIZE enquanto o Stream é consumido.
+     *
+     * - HINT_FETCH_SIZE: quantas linhas o driver busca por round trip
+     * - HINT_READ_ONLY: entidades não entram no dirty checking
+     *
+     * ⚠️ REGRAS DE USO:
+     * - Só funciona dentro de @Transactional (a conexão precisa ficar aberta)
+     * - SEMPRE feche o Stream (try-with-resources)
+     * - No PostgreSQL, o cursor só é usado com autocommit desligado,
+     *   o que o @Transactional já garante
+     *
+     * O "By" vazio no nome evita conflito com findAll() do JpaRepository.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p ORDER BY p.id")
+    Stream<Product> streamAllBy();
+}
+
+// ========================================
+// 📚 BOAS PRÁTICAS - REPOSITORY LAYER
+// ========================================
+
+/*
+ * 1. NOMES DE MÉTODOS:
+ *    ✅ Prefira query methods simples (findByName, existsByEmail)
+ *    ✅ Use @Query quando o nome ficar grande demais
+ *
+ * 2. RETORNOS:
+ *    ✅ Optional<T> para busca de um único registro
+ *    ✅ Page<T> / Slice<T> para listas que podem crescer
+ *    ✅ Slice<T> + cursor quando o cliente só precisa de "carregar mais"
+ *    ✅ Stream<T> para processar milhões de linhas (exportações, jobs)
+ *    ✅ Projeção em DTO (SELECT new ...) para telas só de leitura
+ *    ❌ Evite List<T> sem limite em tabelas grandes
+ *
+ * 3. PERFORMANCE:
+ *    ✅ Use JOIN FETCH / @EntityGraph para evitar N+1
+ *    ✅ Use fetch size em consultas que percorrem a tabela inteira
+ *    ✅ Crie índices para as colunas usadas em WHERE e ORDER BY
+ *    ✅ Contadores (estoque, saldo): UPDATE atômico, nunca read-modify-write
+ */
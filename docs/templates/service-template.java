@@ -2,18 +2,46 @@ package com.momo.ecommerce.service;
 
 import com.momo.ecommerce.dto.request.ProductRequestDTO;
 import com.momo.ecommerce.dto.response.ProductResponseDTO;
+import com.momo.ecommerce.exception.BusinessException;
 import com.momo.ecommerce.exception.ResourceNotFoundException;
 import com.momo.ecommerce.model.Product;
+import com.momo.ecommerce.repository.CategoryRepository;
 import com.momo.ecommerce.repository.ProductRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * ========================================
@@ -67,8 +95,61 @@ import java.util.stream.Collectors;
 @Service // Marca como componente de serviço Spring
 @RequiredArgsConstructor // Lombok: cria construtor com campos final (injeção de dependência)
 @Slf4j // Lombok: adiciona logger (log.info(), log.error(), etc)
+@Timed(value = "app.service", histogram = true) // Micrometer: latência de cada método público (ver docs/observability.md)
 public class ProductService {
 
+    // ========================================
+    // CONSTANTES
+    // ========================================
+    
+    /**
+     * Quantos produtos exportar antes de limpar o EntityManager.
+     * Deve ser igual (ou múltiplo) do fetch size do repository.
+     */
+    private static final int EXPORT_BATCH_SIZE = 500;
+    
+    private static final String CSV_HEADER = "id,name,description,price,stock,createdAt,updatedAt\n";
+    
+    /**
+     * Tamanho máximo de página aceito na paginação por cursor.
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    
+    /**
+     * Nome do cache de detalhes de produto (configurado em application.properties).
+     */
+    public static final String PRODUCT_CACHE = "products";
+    
+    /**
+     * Produtos por transação na importação em massa.
+     * Múltiplo de hibernate.jdbc.batch_size (50).
+     */
+    private static final int IMPORT_CHUNK_SIZE = 1_000;
+    
+    /**
+     * Vazão mínima esperada na importação (produtos/segundo).
+     * Abaixo disso logamos um aviso: provável batch desligado.
+     */
+    private static final int IMPORT_TARGET_PER_SECOND = 5_000;
+    
+    /**
+     * IDs por comando nas operações em lote (tamanho do IN (...)).
+     */
+    private static final int BULK_CHUNK_SIZE = 1_000;
+    
+    /**
+     * Limites das faixas do histograma de preços.
+     * DEVEM ser os mesmos do width_bucket() da migration V4.
+     */
+    private static final List<BigDecimal> PRICE_BUCKET_BOUNDARIES = List.of(
+            new BigDecimal("50"), new BigDecimal("100"), new BigDecimal("250"), new BigDecimal("500"),
+            new BigDecimal("1000"), new BigDecimal("2500"), new BigDecimal("5000"));
+    
+    /**
+     * Intervalo entre recálculos do histograma de preços (5 min).
+     */
+    private static final long PRICE_HISTOGRAM_REFRESH_MS = 300_000;
+
     // ========================================
     // DEPENDÊNCIAS
     // ========================================
@@ -84,8 +165,42 @@ public class ProductService {
      */
     private final ProductRepository productRepository;
     
+    /**
+     * EntityManager é usado para limpar o contexto de persistência
+     * durante a exportação (ver exportCatalog).
+     */
+    private final EntityManager entityManager;
+    
+    /**
+     * ObjectMapper configurado pelo Spring Boot (mesmas regras de JSON da API).
+     */
+    private final ObjectMapper objectMapper;
+    
+    /**
+     * CacheManager: usado só nas operações em lote, onde
+     * @CacheEvict não consegue remover várias chaves de uma vez.
+     */
+    private final CacheManager cacheManager;
+    
+    /**
+     * TransactionTemplate: controle de transação PROGRAMÁTICO.
+     * Usado na importação, onde cada lote tem sua própria transação.
+     */
+    private final TransactionTemplate transactionTemplate;
+    
+    /**
+     * Repete escritas que perderam a disputa de @Version
+     * (ver update/partialUpdate e docs/best-practices.md).
+     */
+    private final OptimisticRetryExecutor optimisticRetry;
+    
+    /**
+     * Contadores product_count das categorias (Fase 2, Passo 8).
+     * Deleções e operações em lote recalculam as categorias afetadas.
+     */
+    private final CategoryRepository categoryRepository;
+    
     // Se precisar de outros serviços ou repositories:
-    // private final CategoryRepository categoryRepository;
     // private final EmailService emailService;
 
     // ========================================
@@ -163,19 +278,76 @@ public class ProductService {
      * - Economia de recursos
      * 
      * Sempre use readOnly = true em métodos de consulta!
+     * 
+     * ⚠️ ATENÇÃO: carrega a tabela INTEIRA em memória (List + DTOs).
+     * Com milhões de produtos isso estoura o heap.
+     * - Para telas: use findAllPaginated()
+     * - Para exportar o catálogo: use exportCatalog()
      */
+    @Deprecated
     @Transactional(readOnly = true)
     public List<ProductResponseDTO> findAll() {
-        log.info("Fetching all products");
+        log.debug("Fetching all products");
         
-        List<Product> products = productRepository.findAll();
+        // Projeção: o banco já devolve DTOs, sem entidades gerenciadas
+        List<ProductResponseDTO> products = productRepository.findAllAsDto();
         
-        log.info("Found {} products", products.size());
+        log.debug("Found {} products", products.size());
         
-        // Converte lista de entidades para lista de DTOs
-        return products.stream()
-                .map(ProductResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+        return products;
+    }
+    
+    /**
+     * Exporta o catálogo completo em STREAMING (NDJSON ou CSV).
+     * 
+     * Por que não usar findAll()?
+     * - findAll() monta uma List com TODOS os produtos antes de responder
+     * - Aqui cada produto é escrito assim que chega do banco
+     * - Memória fica constante, não importa o tamanho do catálogo
+     * - O primeiro byte sai em milissegundos
+     * 
+     * COMO FUNCIONA:
+     * 1. streamAllBy() abre um cursor JDBC (fetch size definido no repository)
+     * 2. Cada produto é convertido em DTO e escrito no Writer
+     * 3. A cada EXPORT_BATCH_SIZE produtos: flush() no Writer e clear()
+     *    no EntityManager, liberando as entidades já exportadas
+     * 
+     * ⚠️ O Stream PRECISA ser fechado (try-with-resources), senão a
+     * conexão com o banco fica presa até o fim da transação.
+     * 
+     * @return quantidade de produtos exportados
+     */
+    @Transactional(readOnly = true)
+    public long exportCatalog(Writer writer, ExportFormat format) throws IOException {
+        log.info("Exporting product catalog as {}", format);
+        
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+        }
+        
+        long count = 0;
+        
+        try (Stream<Product> products = productRepository.streamAllBy()) {
+            // Iterator ao invés de forEach: permite lançar IOException
+            Iterator<Product> iterator = products.iterator();
+            
+            while (iterator.hasNext()) {
+                ProductResponseDTO dto = ProductResponseDTO.fromEntity(iterator.next());
+                writer.write(format == ExportFormat.CSV ? toCsvLine(dto) : toJsonLine(dto));
+                
+                // Libera memória a cada lote
+                if (++count % EXPORT_BATCH_SIZE == 0) {
+                    writer.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+        
+        writer.flush();
+        
+        log.info("Exported {} products", count);
+        
+        return count;
     }
     
     /**
@@ -193,14 +365,21 @@ public class ProductService {
      * 
      * Exemplo de uso no controller:
      * GET /products?page=0&size=10&sort=name,asc
+     * 
+     * LEITURA SÓ PARA EXIBIR? Use PROJEÇÃO (findAllAsDto):
+     * - Carregar entidades só para copiar em DTO custa caro:
+     *   cada entidade vira objeto gerenciado + snapshot para dirty checking
+     * - A projeção monta o DTO direto do ResultSet
+     * - Entidades continuam sendo o caminho para ESCREVER (update, delete)
      */
     @Transactional(readOnly = true)
     public Page<ProductResponseDTO> findAllPaginated(Pageable pageable) {
-        log.info("Fetching products - Page: {}, Size: {}", 
+        log.debug("Fetching products - Page: {}, Size: {}", 
                 pageable.getPageNumber(), 
                 pageable.getPageSize());
         
-        Page<Product> productsPage = productRepository.findAll(pageable);
+        // Projeção: SELECT só das colunas do DTO, nada no contexto de persistência
+        Page<ProductResponseDTO> productsPage = productRepository.findAllAsDto(pageable);
         
         // Page tem métodos úteis:
         // - getTotalElements(): total de registros
@@ -208,12 +387,63 @@ public class ProductService {
         // - hasNext(): tem próxima página?
         // - hasPrevious(): tem página anterior?
         
-        log.info("Found {} products in {} pages", 
+        log.debug("Found {} products in {} pages", 
                 productsPage.getTotalElements(), 
                 productsPage.getTotalPages());
         
-        // Page.map() converte cada elemento mantendo info de paginação
-        return productsPage.map(ProductResponseDTO::fromEntity);
+        return productsPage;
+    }
+    
+    /**
+     * Busca produtos com paginação por CURSOR (keyset / seek).
+     * 
+     * Problema da paginação por OFFSET (findAllPaginated):
+     * - page=5000 faz o banco LER e DESCARTAR 50.000 linhas
+     * - Cada página ainda paga um SELECT COUNT(*) da tabela inteira
+     * 
+     * Paginação por cursor:
+     * - O cliente devolve o "nextCursor" recebido na página anterior
+     * - O cursor guarda (name, id) do último item visto
+     * - A query começa DEPOIS desse ponto (WHERE, não OFFSET)
+     * - Retorna Slice: sem COUNT(*)
+     * - Tempo constante em qualquer profundidade
+     * 
+     * Ideal para scroll infinito ("carregar mais").
+     * Não serve para "ir para a página 37" (use findAllPaginated).
+     * 
+     * @param cursor null na primeira página; depois, o nextCursor recebido
+     * @param size   itens por página (máximo MAX_CURSOR_PAGE_SIZE)
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ProductResponseDTO> findAllByCursor(String cursor, int size) {
+        log.debug("Fetching products by cursor - Size: {}", size);
+        
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new BusinessException("Tamanho da página deve estar entre 1 e " + MAX_CURSOR_PAGE_SIZE);
+        }
+        
+        Pageable limit = PageRequest.ofSize(size);
+        
+        Slice<Product> slice;
+        if (cursor == null || cursor.isBlank()) {
+            slice = productRepository.findFirstSlice(limit);
+        } else {
+            ProductCursor position = ProductCursor.decode(cursor);
+            slice = productRepository.findSliceAfter(position.name(), position.id(), limit);
+        }
+        
+        List<ProductResponseDTO> content = slice.getContent().stream()
+                .map(ProductResponseDTO::fromEntity)
+                .collect(Collectors.toList());
+        
+        // O próximo cursor aponta para o ÚLTIMO item desta página
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            Product last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            nextCursor = new ProductCursor(last.getName(), last.getId()).encode();
+        }
+        
+        return new CursorPage<>(content, nextCursor, slice.hasNext());
     }
     
     /**
@@ -224,14 +454,25 @@ public class ProductService {
      * orElseThrow() é uma forma elegante de lidar com Optional:
      * - Se presente: retorna o valor
      * - Se ausente: lança exceção
+     * 
+     * @Cacheable (READ-THROUGH):
+     * - 1ª chamada: busca no banco e guarda o DTO no cache "products"
+     * - Próximas: devolve do cache, sem tocar no PostgreSQL
+     * - Exceções NÃO são cacheadas (produto inexistente sempre vai ao banco)
+     * 
+     * Guardamos o DTO (record imutável), nunca a entidade JPA:
+     * entidade no cache = LazyInitializationException e dados compartilhados.
+     * 
+     * Todo método que ALTERA produto precisa invalidar a chave (@CacheEvict).
      */
+    @Cacheable(value = PRODUCT_CACHE, key = "#id")
     @Transactional(readOnly = true)
     public ProductResponseDTO findById(Long id) {
-        log.info("Fetching product with ID: {}", id);
+        log.debug("Fetching product with ID: {}", id);
         
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> {
-                    log.warn("Product not found with ID: {}", id);
+                    log.debug("Product not found with ID: {}", id);
                     return new ResourceNotFoundException("Produto não encontrado com ID: " + id);
                 });
         
@@ -242,40 +483,119 @@ public class ProductService {
      * Busca por nome (exemplo de query customizada).
      * 
      * Demonstra como usar repository methods customizados.
+     * 
+     * ⚠️ LIKE '%nome%' varre a tabela inteira a cada busca.
+     * Para a busca da loja (autocomplete, relevância) use search().
      */
+    @Deprecated
     @Transactional(readOnly = true)
     public List<ProductResponseDTO> findByName(String name) {
-        log.info("Searching products by name containing: '{}'", name);
+        log.debug("Searching products by name containing: '{}'", name);
         
         // Repository method: findByNameContainingIgnoreCase
         List<Product> products = productRepository.findByNameContainingIgnoreCase(name);
         
-        log.info("Found {} products matching '{}'", products.size(), name);
+        log.debug("Found {} products matching '{}'", products.size(), name);
         
         return products.stream()
                 .map(ProductResponseDTO::fromEntity)
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Busca textual com RELEVÂNCIA e paginação.
+     * 
+     * Usa índices GIN do PostgreSQL (tsvector + pg_trgm) ao invés de LIKE:
+     * - "note gam" encontra "Notebook Gamer" (prefixo de cada palavra)
+     * - "notbook" encontra "Notebook" (similaridade por trigramas)
+     * - Resultados mais relevantes primeiro
+     * 
+     * A ordenação é SEMPRE por relevância: o sort do Pageable é ignorado.
+     */
+    @Transactional(readOnly = true)
+    public Page<ProductResponseDTO> search(String term, Pageable pageable) {
+        log.debug("Full-text search for '{}' - Page: {}", term, pageable.getPageNumber());
+        
+        String tsQuery = toPrefixTsQuery(term);
+        
+        // Só símbolos/espaços: nada para buscar
+        if (tsQuery.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        
+        return productRepository.searchByText(tsQuery, term.trim(), unsorted)
+                .map(ProductResponseDTO::fromEntity);
+    }
+    
     /**
      * Busca produtos por faixa de preço.
      * 
      * Exemplo de método com múltiplos parâmetros.
+     * 
+     * @deprecated sem limite de resultados. Use a versão paginada.
      */
+    @Deprecated
     @Transactional(readOnly = true)
     public List<ProductResponseDTO> findByPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
-        log.info("Searching products with price between {} and {}", minPrice, maxPrice);
+        log.debug("Searching products with price between {} and {}", minPrice, maxPrice);
         
-        // Validação de parâmetros
-        if (minPrice.compareTo(maxPrice) > 0) {
-            throw new BusinessException("Preço mínimo não pode ser maior que preço máximo");
-        }
+        validatePriceRange(minPrice, maxPrice);
+        
+        return productRepository.findAsDtoByPriceBetween(minPrice, maxPrice);
+    }
+    
+    /**
+     * Busca produtos ativos por faixa de preço, paginado e ordenado por preço.
+     * 
+     * categoryId opcional: com categoria usa o índice (category_id, price),
+     * sem categoria usa (active, price).
+     */
+    @Transactional(readOnly = true)
+    public Page<ProductResponseDTO> findByPriceRange(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                                     Pageable pageable) {
+        log.debug("Searching products with price between {} and {} - Page: {}",
+                minPrice, maxPrice, pageable.getPageNumber());
         
-        List<Product> products = productRepository.findByPriceBetween(minPrice, maxPrice);
+        validatePriceRange(minPrice, maxPrice);
         
-        return products.stream()
-                .map(ProductResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+        // A ordem (price, id) está na query: ignora sort vindo do cliente
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        
+        return categoryId == null
+                ? productRepository.findAsDtoByPriceBetween(minPrice, maxPrice, unsorted)
+                : productRepository.findAsDtoByCategoryAndPriceBetween(categoryId, minPrice, maxPrice, unsorted);
+    }
+    
+    /**
+     * Histograma de preços para o filtro da loja ("R$ 100 a R$ 250 (42)").
+     * 
+     * Lê a view materializada: custo constante, não importa o tamanho
+     * do catálogo. Os números podem estar até PRICE_HISTOGRAM_REFRESH_MS
+     * atrasados, o que é aceitável para contagens de filtro.
+     */
+    @Transactional(readOnly = true)
+    public List<PriceBucket> getPriceHistogram(Long categoryId) {
+        List<PriceBucket> buckets = new ArrayList<>();
+        for (ProductRepository.PriceBucketRow row : productRepository.findPriceHistogram(categoryId)) {
+            int bucket = row.getBucket();
+            BigDecimal from = bucket == 0 ? BigDecimal.ZERO : PRICE_BUCKET_BOUNDARIES.get(bucket - 1);
+            BigDecimal to = bucket < PRICE_BUCKET_BOUNDARIES.size() ? PRICE_BUCKET_BOUNDARIES.get(bucket) : null;
+            buckets.add(new PriceBucket(from, to, row.getProductCount()));
+        }
+        return buckets;
+    }
+    
+    /**
+     * Recalcula o histograma em segundo plano.
+     * 
+     * Precisa de @EnableScheduling em uma classe @Configuration.
+     */
+    @Scheduled(fixedDelay = PRICE_HISTOGRAM_REFRESH_MS)
+    @Transactional
+    public void refreshPriceHistogram() {
+        productRepository.refreshPriceHistogram();
     }
 
     // ========================================
@@ -287,33 +607,47 @@ public class ProductService {
      * 
      * PUT substitui o recurso inteiro.
      * Todos os campos são atualizados.
+     * 
+     * CONCORRÊNCIA: Product tem @Version. Se outra transação gravar o
+     * produto entre o findById e o commit, o UPDATE não encontra a versão
+     * lida e o Hibernate lança OptimisticLockingFailureException.
+     * 
+     * PUT NÃO é repetido: ele grava o estoque ABSOLUTO que o cliente viu.
+     * Se o conflito foi uma baixa do checkout (decrementStock também sobe
+     * a versão), reaplicar o PUT sobre o dado relido devolveria as
+     * unidades vendidas ao estoque. O conflito vira 409 e o cliente relê.
+     * 
+     * Sem @Transactional aqui: a transação é aberta pelo executor.
      */
-    @Transactional
+    @CacheEvict(value = PRODUCT_CACHE, key = "#id")
     public ProductResponseDTO update(Long id, ProductRequestDTO request) {
         log.info("Updating product ID: {}", id);
         
-        // Busca o produto existente
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Produto não encontrado com ID: " + id));
-        
-        // Validação de negócio: não permitir alteração se houver pedidos
-        // if (hasActiveOrders(id)) {
-        //     throw new BusinessException("Não é possível atualizar produto com pedidos ativos");
-        // }
-        
-        // Atualiza TODOS os campos
-        product.setName(request.name());
-        product.setDescription(request.description());
-        product.setPrice(request.price());
-        product.setStock(request.stock());
-        
-        // save() faz UPDATE pois entidade já tem ID
-        // updatedAt é setado automaticamente pelo @PreUpdate
-        Product updatedProduct = productRepository.save(product);
-        
-        log.info("Product ID {} updated successfully", id);
-        
-        return ProductResponseDTO.fromEntity(updatedProduct);
+        return optimisticRetry.execute("product.update", false, () -> {
+            // Busca o produto existente (versão atual a cada tentativa)
+            Product product = productRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Produto não encontrado com ID: " + id));
+            
+            // Validação de negócio: não permitir alteração se houver pedidos
+            // if (hasActiveOrders(id)) {
+            //     throw new BusinessException("Não é possível atualizar produto com pedidos ativos");
+            // }
+            
+            // Atualiza TODOS os campos
+            product.setName(request.name());
+            product.setDescription(request.description());
+            product.setPrice(request.price());
+            product.setStock(request.stock());
+            
+            // save() faz UPDATE ... WHERE id = ? AND version = ?
+            // updatedAt é setado automaticamente pelo @PreUpdate
+            // saveAndFlush: o conflito aparece AQUI, não no commit
+            Product updatedProduct = productRepository.saveAndFlush(product);
+            
+            log.info("Product ID {} updated successfully", id);
+            
+            return ProductResponseDTO.fromEntity(updatedProduct);
+        });
     }
     
     /**
@@ -324,60 +658,102 @@ public class ProductService {
      * 
      * Útil quando você tem muitos campos e quer atualizar só alguns.
      */
-    @Transactional
+    @CacheEvict(value = PRODUCT_CACHE, key = "#id")
     public ProductResponseDTO partialUpdate(Long id, ProductRequestDTO request) {
         log.info("Partially updating product ID: {}", id);
         
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Produto não encontrado com ID: " + id));
-        
-        // Atualiza apenas campos NÃO NULOS
-        if (request.name() != null) {
-            product.setName(request.name());
-        }
-        
-        if (request.description() != null) {
-            product.setDescription(request.description());
-        }
-        
-        if (request.price() != null) {
-            product.setPrice(request.price());
-        }
-        
-        if (request.stock() != null) {
-            product.setStock(request.stock());
-        }
-        
-        Product updatedProduct = productRepository.save(product);
-        
-        log.info("Product ID {} partially updated", id);
-        
-        return ProductResponseDTO.fromEntity(updatedProduct);
+        // Cada tentativa aplica o PATCH sobre a versão mais nova:
+        // dois admins mudando campos diferentes não perdem nada.
+        // Exceto com estoque: valor absoluto não é repetido (ver update)
+        boolean retryable = request.stock() == null;
+        return optimisticRetry.execute("product.partialUpdate", retryable, () -> {
+            Product product = productRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Produto não encontrado com ID: " + id));
+            
+            // Atualiza apenas campos NÃO NULOS
+            if (request.name() != null) {
+                product.setName(request.name());
+            }
+            
+            if (request.description() != null) {
+                product.setDescription(request.description());
+            }
+            
+            if (request.price() != null) {
+                product.setPrice(request.price());
+            }
+            
+            if (request.stock() != null) {
+                product.setStock(request.stock());
+            }
+            
+            Product updatedProduct = productRepository.saveAndFlush(product);
+            
+            log.info("Product ID {} partially updated", id);
+            
+            return ProductResponseDTO.fromEntity(updatedProduct);
+        });
     }
     
     /**
      * Atualiza estoque (exemplo de operação específica).
      * 
      * Demonstra método de negócio que não é CRUD puro.
+     * 
+     * ⚠️ CONCORRÊNCIA: NÃO faça findById → setStock → save!
+     * Duas requisições simultâneas leem o mesmo valor e uma
+     * sobrescreve a outra (lost update).
+     * 
+     * Aqui usamos um UPDATE condicional no banco:
+     * - Entrada (quantity > 0): stock = stock + quantity
+     * - Saída (quantity < 0): stock = stock - |quantity| SÓ SE houver saldo
+     * 
+     * O banco garante a atomicidade; nenhuma entidade é carregada.
      */
+    @CacheEvict(value = PRODUCT_CACHE, key = "#id")
     @Transactional
     public void updateStock(Long id, Integer quantity) {
         log.info("Updating stock for product ID {}: {}", id, quantity);
         
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Produto não encontrado com ID: " + id));
+        int updatedRows = quantity >= 0
+                ? productRepository.incrementStock(id, quantity)
+                : productRepository.decrementStock(id, -quantity);
         
-        // Validação de negócio
-        int newStock = product.getStock() + quantity;
-        
-        if (newStock < 0) {
+        // 0 linhas: ou o produto não existe, ou não havia saldo
+        if (updatedRows == 0) {
+            if (!productRepository.existsById(id)) {
+                throw new ResourceNotFoundException("Produto não encontrado com ID: " + id);
+            }
             throw new BusinessException("Estoque não pode ficar negativo");
         }
         
-        product.setStock(newStock);
-        productRepository.save(product);
+        log.info("Stock updated for product ID {} by {}", id, quantity);
+    }
+
+    /**
+     * Remove vários produtos do cache, mas só DEPOIS do commit.
+     * 
+     * Se removermos antes, uma leitura concorrente pode recolocar
+     * no cache a versão antiga (ainda não commitada a remoção).
+     * Se a transação fizer rollback, nada é removido.
+     * 
+     * Público porque quem muda estoque por UPDATE em lote fora deste
+     * service (reserva de estoque e checkout, Fase 4) não passa pelo
+     * @CacheEvict e precisa invalidar do mesmo jeito.
+     * Deve ser chamado dentro de uma transação.
+     */
+    public void evictFromCacheAfterCommit(Collection<Long> ids) {
+        Cache cache = cacheManager.getCache(PRODUCT_CACHE);
+        if (cache == null) {
+            return;
+        }
         
-        log.info("Stock updated for product ID {}: {} → {}", id, product.getStock(), newStock);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.forEach(cache::evict);
+            }
+        });
     }
 
     // ========================================
@@ -391,6 +767,7 @@ public class ProductService {
      * 
      * ⚠️ ATENÇÃO: Considere usar SOFT DELETE em produção!
      */
+    @CacheEvict(value = PRODUCT_CACHE, key = "#id")
     @Transactional
     public void delete(Long id) {
         log.info("Deleting product with ID: {}", id);
@@ -405,6 +782,8 @@ public class ProductService {
         // }
         
         productRepository.delete(product);
+        productRepository.flush();  // o recount (SQL nativo) precisa ver o DELETE
+        recountCategories(categoryIdsOf(List.of(product)));
         
         log.info("Product ID {} deleted successfully", id);
     }
@@ -427,7 +806,11 @@ public class ProductService {
      * E nos repositories:
      * @Query("SELECT p FROM Product p WHERE p.deletedAt IS NULL")
      * List<Product> findAllActive();
+     * 
+     * Produto soft-deletado sai da vitrine: o contador da categoria
+     * e a listagem por categoria filtram deleted_at IS NULL.
      */
+    @CacheEvict(value = PRODUCT_CACHE, key = "#id")
     @Transactional
     public void softDelete(Long id) {
         log.info("Soft deleting product with ID: {}", id);
@@ -437,7 +820,8 @@ public class ProductService {
         
         // Marca como deletado
         product.setDeletedAt(LocalDateTime.now());
-        productRepository.save(product);
+        productRepository.saveAndFlush(product);  // o recount precisa ver o UPDATE
+        recountCategories(categoryIdsOf(List.of(product)));
         
         log.info("Product ID {} soft deleted successfully", id);
     }
@@ -446,6 +830,12 @@ public class ProductService {
     // MÉTODOS AUXILIARES (PRIVATE)
     // ========================================
     
+    private void validatePriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice.compareTo(maxPrice) > 0) {
+            throw new BusinessException("Preço mínimo não pode ser maior que preço máximo");
+        }
+    }
+    
     /**
      * Métodos privados para lógica interna do service.
      * 
@@ -455,6 +845,111 @@ public class ProductService {
      * - Melhorar legibilidade
      */
     
+    /**
+     * Executa o comando em lotes de IDs e calcula quais não existiam.
+     * 
+     * O comando recebe os IDs do lote e devolve as linhas afetadas
+     * (RETURNING id, category_id): IDs para o resultado e o cache,
+     * categorias para recalcular os contadores.
+     */
+    private BulkDeleteResult runInChunks(List<Long> ids,
+                                         Function<Collection<Long>, List<ProductRepository.BulkRow>> command) {
+        List<Long> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+        Set<Long> affected = new HashSet<>();
+        Set<Long> categoryIds = new HashSet<>();
+        
+        for (int from = 0; from < distinctIds.size(); from += BULK_CHUNK_SIZE) {
+            int to = Math.min(from + BULK_CHUNK_SIZE, distinctIds.size());
+            for (ProductRepository.BulkRow row : command.apply(distinctIds.subList(from, to))) {
+                affected.add(row.getId());
+                if (row.getCategoryId() != null) {
+                    categoryIds.add(row.getCategoryId());
+                }
+            }
+        }
+        
+        recountCategories(categoryIds);
+        evictFromCacheAfterCommit(affected);
+        
+        List<Long> missingIds = distinctIds.stream()
+                .filter(id -> !affected.contains(id))
+                .collect(Collectors.toList());
+        
+        return new BulkDeleteResult(affected.size(), missingIds);
+    }
+    
+    /**
+     * Recalcula product_count das categorias afetadas.
+     * 
+     * Deleções e lotes não passam pelo CategoryService.transferProductCount
+     * (Fase 2): sem isto o contador da vitrine se afasta do real.
+     * Recalcular (em vez de somar -1 por linha) continua certo quando o
+     * lote repete produtos já soft-deletados ou inativos.
+     * 
+     * Roda na transação de quem chamou: rollback desfaz o contador junto.
+     */
+    private void recountCategories(Set<Long> categoryIds) {
+        if (!categoryIds.isEmpty()) {
+            categoryRepository.recountProducts(categoryIds);
+        }
+    }
+    
+    private Set<Long> categoryIdsOf(List<Product> products) {
+        return products.stream()
+                .filter(product -> product.getCategory() != null)
+                .map(product -> product.getCategory().getId())
+                .collect(Collectors.toSet());
+    }
+    
+    /**
+     * Converte o texto digitado em tsquery de prefixos.
+     * 
+     * "Note  Gamer!" → "note:* & gamer:*"
+     * 
+     * Remove tudo que não é letra/número: caracteres como & | ! ( ) :
+     * têm significado no to_tsquery e gerariam erro de sintaxe.
+     */
+    private String toPrefixTsQuery(String term) {
+        if (term == null) {
+            return "";
+        }
+        
+        return Arrays.stream(term.toLowerCase().split("\\s+"))
+                .map(word -> word.replaceAll("[^\\p{L}\\p{N}]", ""))
+                .filter(word -> !word.isEmpty())
+                .map(word -> word + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+    
+    /**
+     * Uma linha JSON por produto (NDJSON = newline-delimited JSON).
+     */
+    private String toJsonLine(ProductResponseDTO dto) {
+        return objectMapper.writeValueAsString(dto) + "\n";
+    }
+    
+    /**
+     * Uma linha CSV por produto (campos de texto entre aspas).
+     */
+    private String toCsvLine(ProductResponseDTO dto) {
+        return String.join(",",
+                String.valueOf(dto.id()),
+                csvQuote(dto.name()),
+                csvQuote(dto.description()),
+                String.valueOf(dto.price()),
+                String.valueOf(dto.stock()),
+                String.valueOf(dto.createdAt()),
+                String.valueOf(dto.updatedAt())) + "\n";
+    }
+    
+    private String csvQuote(String value) {
+        if (value == null) {
+            return "";
+        }
+        // Aspas internas são duplicadas (padrão RFC 4180)
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+    
     private boolean hasActiveOrders(Long productId) {
         // Exemplo: verificar se produto tem pedidos ativos
         // return orderRepository.existsByProductIdAndStatus(productId, OrderStatus.PENDING);
@@ -487,6 +982,8 @@ public class ProductService {
      * 
      * Mais eficiente que criar um por vez.
      * Uma única transação para todos.
+     * 
+     * Não mexe no cache: produtos novos ainda não têm entrada em "products".
      */
     @Transactional
     public List<ProductResponseDTO> createBatch(List<ProductRequestDTO> requests) {
@@ -502,7 +999,10 @@ public class ProductService {
                 .collect(Collectors.toList());
         
         // saveAll() é mais eficiente que save() múltiplas vezes
+        // Com ID SEQUENCE + hibernate.jdbc.batch_size, os INSERTs vão em lotes de 50
         List<Product> savedProducts = productRepository.saveAll(products);
+        productRepository.flush();  // o recount (SQL nativo) precisa ver os INSERTs
+        recountCategories(categoryIdsOf(savedProducts));
         
         log.info("{} products created successfully", savedProducts.size());
         
@@ -511,27 +1011,213 @@ public class ProductService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Importação em MASSA (milhares de produtos).
+     * 
+     * Diferenças para createBatch():
+     * - Divide a lista em lotes de IMPORT_CHUNK_SIZE
+     * - Cada lote tem a SUA transação (TransactionTemplate)
+     * - Se um lote falhar, só ele é desfeito; os outros continuam
+     * - Não devolve DTOs (seriam milhares), só um resumo com os erros
+     * 
+     * Por que não @Transactional aqui?
+     * - Uma transação única com 100 mil produtos segura locks e memória
+     *   do início ao fim, e um erro no último item desfaz TUDO
+     * 
+     * Pré-requisitos para o batch JDBC funcionar:
+     * - ID com GenerationType.SEQUENCE (ver entity-template.java)
+     * - hibernate.jdbc.batch_size=50 e hibernate.order_inserts=true
+     * - reWriteBatchedInserts=true na URL do PostgreSQL
+     */
+    public ImportResult importProducts(List<ProductRequestDTO> requests) {
+        log.info("Importing {} products in chunks of {}", requests.size(), IMPORT_CHUNK_SIZE);
+        
+        long start = System.nanoTime();
+        int imported = 0;
+        List<ChunkError> errors = new ArrayList<>();
+        
+        for (int from = 0; from < requests.size(); from += IMPORT_CHUNK_SIZE) {
+            int to = Math.min(from + IMPORT_CHUNK_SIZE, requests.size());
+            List<ProductRequestDTO> chunk = requests.subList(from, to);
+            
+            try {
+                // Uma transação por lote: commit ao final do lambda,
+                // contadores das categorias do lote incluídos
+                transactionTemplate.executeWithoutResult(status -> {
+                    List<Product> saved = productRepository.saveAll(chunk.stream()
+                            .map(request -> Product.builder()
+                                    .name(request.name())
+                                    .description(request.description())
+                                    .price(request.price())
+                                    .stock(request.stock())
+                                    .build())
+                            .collect(Collectors.toList()));
+                    productRepository.flush();
+                    recountCategories(categoryIdsOf(saved));
+                });
+                imported += chunk.size();
+            } catch (RuntimeException e) {
+                // Lote desfeito (rollback); registra e segue para o próximo
+                log.warn("Import chunk [{}, {}) failed: {}", from, to, e.getMessage());
+                errors.add(new ChunkError(from, to, e.getMessage()));
+            }
+        }
+        
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long perSecond = imported * 1000L / elapsedMillis;
+        
+        log.info("Imported {} products in {} ms ({} products/s), {} chunks failed",
+                imported, elapsedMillis, perSecond, errors.size());
+        
+        if (imported > IMPORT_CHUNK_SIZE && perSecond < IMPORT_TARGET_PER_SECOND) {
+            log.warn("Import throughput below target of {} products/s - check JDBC batch settings",
+                    IMPORT_TARGET_PER_SECOND);
+        }
+        
+        return new ImportResult(imported, errors, elapsedMillis);
+    }
+    
     /**
      * Deleta múltiplos produtos.
      * 
      * ⚠️ Use com cautela! Operação irreversível.
+     * 
+     * SET-BASED: nenhuma entidade é carregada.
+     * - findAllById + deleteAll = 1 SELECT + 1 DELETE POR PRODUTO
+     * - Aqui = 1 DELETE ... WHERE id IN (...) por lote de BULK_CHUNK_SIZE IDs
+     * 
+     * IDs inexistentes não cancelam a operação: voltam em missingIds
+     * para o cliente decidir o que fazer.
+     * 
+     * ⚠️ DELETE em massa não passa pelo Hibernate: cascades e @PreRemove
+     * NÃO rodam. Produto referenciado por pedidos falha na FK (rollback).
+     * Os contadores das categorias vêm do RETURNING category_id (runInChunks).
      */
     @Transactional
-    public void deleteBatch(List<Long> ids) {
+    public BulkDeleteResult deleteBatch(List<Long> ids) {
         log.info("Deleting {} products in batch", ids.size());
         
-        // Outra forma: productRepository.deleteAllById(ids);
-        // Mas aqui temos mais controle para validações
+        BulkDeleteResult result = runInChunks(ids, productRepository::deleteAllByIdReturning);
+        
+        log.info("{} products deleted, {} not found", result.affected(), result.missingIds().size());
+        
+        return result;
+    }
+    
+    /**
+     * SOFT DELETE em lote (contraparte de softDelete para vários IDs).
+     * 
+     * Um UPDATE ... SET deleted_at por lote, sem carregar entidades.
+     */
+    @Transactional
+    public BulkDeleteResult softDeleteBatch(List<Long> ids) {
+        log.info("Soft deleting {} products in batch", ids.size());
+        
+        BulkDeleteResult result = runInChunks(ids, productRepository::softDeleteAllByIdReturning);
+        
+        log.info("{} products soft deleted, {} not found", result.affected(), result.missingIds().size());
+        
+        return result;
+    }
+    
+    // ========================================
+    // TIPOS AUXILIARES
+    // ========================================
+    
+    /**
+     * Formatos suportados pela exportação do catálogo.
+     */
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+        
+        private final String contentType;
         
-        List<Product> products = productRepository.findAllById(ids);
+        ExportFormat(String contentType) {
+            this.contentType = contentType;
+        }
         
-        if (products.size() != ids.size()) {
-            throw new ResourceNotFoundException("Alguns produtos não foram encontrados");
+        public String getContentType() {
+            return contentType;
         }
+    }
+    
+    /**
+     * Resumo da importação em massa.
+     * 
+     * - imported: produtos gravados com sucesso
+     * - errors: lotes que falharam (e foram desfeitos)
+     * - elapsedMillis: duração total, para acompanhar a vazão
+     */
+    public record ImportResult(int imported, List<ChunkError> errors, long elapsedMillis) {
+    }
+    
+    /**
+     * Lote que falhou: posições [fromIndex, toIndex) da lista enviada.
+     */
+    public record ChunkError(int fromIndex, int toIndex, String message) {
+    }
+    
+    /**
+     * Faixa do histograma de preços: [from, to) e quantos produtos ativos tem.
+     * to == null na última faixa ("acima de R$ 5000").
+     */
+    public record PriceBucket(BigDecimal from, BigDecimal to, long productCount) {
+    }
+    
+    /**
+     * Resultado de deleteBatch / softDeleteBatch.
+     * 
+     * - affected: quantos produtos foram (soft) deletados
+     * - missingIds: IDs enviados que não existem no banco
+     */
+    public record BulkDeleteResult(int affected, List<Long> missingIds) {
+    }
+    
+    /**
+     * Página da paginação por cursor.
+     * 
+     * - content: itens desta página
+     * - nextCursor: valor a enviar para buscar a próxima (null se acabou)
+     * - hasNext: existe próxima página?
+     */
+    public record CursorPage<T>(List<T> content, String nextCursor, boolean hasNext) {
         
-        productRepository.deleteAll(products);
+        /**
+         * Converte o conteúdo mantendo o cursor (igual ao Page.map()).
+         */
+        public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+            List<R> mapped = content.stream()
+                    .<R>map(mapper)
+                    .collect(Collectors.toList());
+            return new CursorPage<>(mapped, nextCursor, hasNext);
+        }
+    }
+    
+    /**
+     * Posição do cursor: chave de ordenação (name) + desempate (id).
+     * 
+     * Vai para o cliente como texto Base64 OPACO: o cliente não deve
+     * montar nem interpretar o cursor, só devolver o que recebeu.
+     */
+    private record ProductCursor(String name, Long id) {
+        
+        String encode() {
+            String raw = id + ":" + name;
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
         
-        log.info("{} products deleted successfully", products.size());
+        static ProductCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                // id vem primeiro: o nome pode conter ":"
+                int separator = raw.indexOf(':');
+                return new ProductCursor(raw.substring(separator + 1), Long.valueOf(raw.substring(0, separator)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new BusinessException("Cursor inválido");
+            }
+        }
     }
 }
 
@@ -556,6 +1242,9 @@ public class ProductService {
  *    ✅ Log de ERROS com detalhes (log.error)
  *    ✅ Log de WARNINGS para situações suspeitas (log.warn)
  *    ✅ Não logue dados sensíveis (senhas, cartões)
+ *    ✅ Leituras (caminho quente) em DEBUG: em produção não geram nada
+ *    ✅ Sempre com {}: com o nível desligado, os argumentos nem são formatados
+ *    ❌ 404 não é WARN: é resposta normal (bots e links velhos lotariam o log)
  * 
  * 4. EXCEÇÕES:
  *    ✅ Lance exceções descritivas
@@ -564,9 +1253,10 @@ public class ProductService {
  * 
  * 5. PERFORMANCE:
  *    ✅ Use paginação para listas grandes
- *    ✅ Use projeções quando não precisa da entidade completa
+ *    ✅ Use projeções (SELECT new DTO) em leituras que só exibem dados
  *    ✅ Evite N+1 queries (use JOIN FETCH)
  *    ✅ Use batch operations quando possível
+ *    ✅ Importações grandes: lotes com transação própria (TransactionTemplate)
  * 
  * 6. ORGANIZAÇÃO:
  *    ✅ Um service por entidade principal
@@ -621,7 +1311,7 @@ public class ProductService {
  * 4. Considere PERFORMANCE desde o início
  *    - Vai retornar muitos dados? Use paginação
  *    - Precisa de dados relacionados? Use JOIN FETCH
- *    - Operação cara? Considere cache
+ *    - Operação cara? Considere cache (e invalide em TODA escrita)
  * 
  * 
  * 🐛 PROBLEMAS COMUNS E SOLUÇÕES: